@@ -0,0 +1 @@
+java -jar target/jmxcl.jar hostname:port heap-histo 20 60 0
\ No newline at end of file
@@ -7,6 +7,7 @@ import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -312,9 +313,330 @@ public class JMXCLI {
 	}
 
 
+	/**
+	 * Samples the class histogram of a remote JVM through the DiagnosticCommand
+	 * MBean (the same data as jmap -histo:live) and reports which classes grew
+	 * between two samples.
+	 *
+	 * The histogram text can run to several megabytes, so it is scanned in place
+	 * rather than split into lines. Class names are interned once into a table
+	 * and counts are kept in primitive arrays indexed by class id, which means a
+	 * steady state sample only allocates the histogram string itself. Names that
+	 * have dropped out of the last two samples are compacted away so that a JVM
+	 * generating uniquely named classes does not grow the table forever.
+	 *
+	 * By default every sample forces a full stop-the-world GC so that only live
+	 * objects are counted. Pass all to count unreachable objects as well and
+	 * skip the collection.
+	 */
+	static class HeapHistogram {
+		private static final String DIAGNOSTIC_COMMAND_MBEAN_NAME = "com.sun.management:type=DiagnosticCommand";
+
+		private static final String CLASS_HISTOGRAM_OPERATION = "gcClassHistogram";
+
+		private static final int INITIAL_CAPACITY = 4096;
+
+		private MBeanServerConnection server;
+
+		private ObjectName objname;
+
+		// interned class names, the index is the class id
+		private String[] names = new String[INITIAL_CAPACITY];
+
+		// open addressing table of class id + 1, 0 marks an empty slot
+		private int[] table = new int[INITIAL_CAPACITY * 2];
+
+		private int size;
+
+		private long[] instances = new long[INITIAL_CAPACITY];
+
+		private long[] bytes = new long[INITIAL_CAPACITY];
+
+		private long[] previousInstances = new long[INITIAL_CAPACITY];
+
+		private long[] previousBytes = new long[INITIAL_CAPACITY];
+
+		private boolean hasPrevious;
+
+		private int[] top;
+
+		private String[] arguments;
+
+		public HeapHistogram(MBeanServerConnection server, int topCount, boolean all) {
+			this.server = server;
+			this.top = new int[topCount];
+			this.arguments = all ? new String[] { "-all" } : new String[0];
+			try {
+				objname = new ObjectName(DIAGNOSTIC_COMMAND_MBEAN_NAME);
+			} catch (MalformedObjectNameException e) {
+				// should not reach here
+				InternalError ie = new InternalError(e.getMessage());
+				ie.initCause(e);
+				throw ie;
+			}
+		}
+
+		/**
+		 * Takes a new sample and prints the growth since the previous one, or a
+		 * summary line if this is the first sample.
+		 */
+		public void sample() throws IOException, InstanceNotFoundException, MBeanException, ReflectionException {
+			String histogram = (String) server.invoke(objname, CLASS_HISTOGRAM_OPERATION,
+					new Object[] { arguments }, new String[] { String[].class.getName() });
+
+			long[] swap = previousInstances;
+			previousInstances = instances;
+			instances = swap;
+			swap = previousBytes;
+			previousBytes = bytes;
+			bytes = swap;
+			Arrays.fill(instances, 0, size, 0);
+			Arrays.fill(bytes, 0, size, 0);
+
+			parse(histogram);
+
+			if (hasPrevious) {
+				printDiff();
+			} else {
+				System.out.println(String.format("## Baseline: %d classes, %d instances, %d bytes",
+						size, sum(instances), sum(bytes)));
+			}
+			hasPrevious = true;
+
+			compact();
+		}
+
+		void parse(String histogram) {
+			int length = histogram.length();
+			int pos = 0;
+			while (pos < length) {
+				int eol = histogram.indexOf('\n', pos);
+				if (eol < 0) {
+					eol = length;
+				}
+				parseLine(histogram, pos, eol);
+				pos = eol + 1;
+			}
+		}
+
+		/**
+		 * Parses a "num: #instances #bytes class name [(module)]" row. The header,
+		 * separator and Total lines do not match and are skipped.
+		 */
+		private void parseLine(String s, int start, int end) {
+			int i = skipBlanks(s, start, end);
+			int j = skipDigits(s, i, end);
+			if (j == i || j == end || s.charAt(j) != ':') {
+				return;
+			}
+
+			i = skipBlanks(s, j + 1, end);
+			j = skipDigits(s, i, end);
+			if (j == i) {
+				return;
+			}
+			long rowInstances = parseLong(s, i, j);
+
+			i = skipBlanks(s, j, end);
+			j = skipDigits(s, i, end);
+			if (j == i) {
+				return;
+			}
+			long rowBytes = parseLong(s, i, j);
+
+			i = skipBlanks(s, j, end);
+			j = i;
+			while (j < end && s.charAt(j) > ' ') {
+				j++;
+			}
+			if (j == i) {
+				return;
+			}
+
+			// the same class name is listed once per defining class loader
+			int id = intern(s, i, j);
+			instances[id] += rowInstances;
+			bytes[id] += rowBytes;
+		}
+
+		private int intern(String s, int from, int to) {
+			int hash = 0;
+			for (int k = from; k < to; k++) {
+				hash = 31 * hash + s.charAt(k);
+			}
+
+			int mask = table.length - 1;
+			int slot = spread(hash) & mask;
+			int length = to - from;
+			for (int id = table[slot] - 1; id >= 0; id = table[slot] - 1) {
+				String name = names[id];
+				// String caches its hash code, and it matches the one computed above
+				if (name.hashCode() == hash && name.length() == length && name.regionMatches(0, s, from, length)) {
+					return id;
+				}
+				slot = (slot + 1) & mask;
+			}
+
+			if (size == names.length) {
+				grow();
+				return intern(s, from, to);
+			}
+
+			int id = size++;
+			names[id] = s.substring(from, to);
+			table[slot] = id + 1;
+			return id;
+		}
+
+		private void grow() {
+			int capacity = names.length * 2;
+			names = Arrays.copyOf(names, capacity);
+			instances = Arrays.copyOf(instances, capacity);
+			bytes = Arrays.copyOf(bytes, capacity);
+			previousInstances = Arrays.copyOf(previousInstances, capacity);
+			previousBytes = Arrays.copyOf(previousBytes, capacity);
+
+			table = new int[capacity * 2];
+			rehash();
+		}
+
+		/**
+		 * Drops the ids of classes that were absent from both of the last two
+		 * samples, keeping the order of the remaining ids.
+		 */
+		void compact() {
+			int live = 0;
+			for (int id = 0; id < size; id++) {
+				if (instances[id] == 0 && previousInstances[id] == 0) {
+					continue;
+				}
+				if (live != id) {
+					names[live] = names[id];
+					instances[live] = instances[id];
+					bytes[live] = bytes[id];
+					previousInstances[live] = previousInstances[id];
+					previousBytes[live] = previousBytes[id];
+				}
+				live++;
+			}
+			if (live == size) {
+				return;
+			}
+
+			// new ids are accumulated into, so the freed slots must not keep old counts
+			Arrays.fill(names, live, size, null);
+			Arrays.fill(instances, live, size, 0);
+			Arrays.fill(bytes, live, size, 0);
+			Arrays.fill(previousInstances, live, size, 0);
+			Arrays.fill(previousBytes, live, size, 0);
+			size = live;
+			Arrays.fill(table, 0);
+			rehash();
+		}
+
+		private void rehash() {
+			int mask = table.length - 1;
+			for (int id = 0; id < size; id++) {
+				int slot = spread(names[id].hashCode()) & mask;
+				while (table[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				table[slot] = id + 1;
+			}
+		}
+
+		private void printDiff() {
+			System.out.println(String.format("## Total: %d instances (%+d), %d bytes (%+d)",
+					sum(instances), sum(instances) - sum(previousInstances),
+					sum(bytes), sum(bytes) - sum(previousBytes)));
+
+			System.out.println(String.format("## Top %d growing classes by bytes", top.length));
+			printTop(selectTop(bytes, previousBytes));
+
+			System.out.println(String.format("## Top %d growing classes by instances", top.length));
+			printTop(selectTop(instances, previousInstances));
+			System.out.println();
+		}
+
+		private void printTop(int count) {
+			System.out.println(String.format("%16s %16s  %s", "bytes", "instances", "class name"));
+			for (int k = 0; k < count; k++) {
+				int id = top[k];
+				System.out.println(String.format("%+16d %+16d  %s", bytes[id] - previousBytes[id],
+						instances[id] - previousInstances[id], names[id]));
+			}
+		}
+
+		/**
+		 * Fills top with the ids of the classes with the largest positive growth,
+		 * largest first, and returns how many were found.
+		 */
+		int selectTop(long[] current, long[] previous) {
+			int count = 0;
+			for (int id = 0; id < size; id++) {
+				long delta = current[id] - previous[id];
+				if (delta <= 0) {
+					continue;
+				}
+				if (count == top.length) {
+					int last = top[count - 1];
+					if (delta <= current[last] - previous[last]) {
+						continue;
+					}
+					count--;
+				}
+				int k = count++;
+				while (k > 0 && current[top[k - 1]] - previous[top[k - 1]] < delta) {
+					top[k] = top[k - 1];
+					k--;
+				}
+				top[k] = id;
+			}
+			return count;
+		}
+
+		private long sum(long[] values) {
+			long total = 0;
+			for (int id = 0; id < size; id++) {
+				total += values[id];
+			}
+			return total;
+		}
+
+		private static int spread(int hash) {
+			return hash ^ (hash >>> 16);
+		}
+
+		private static int skipBlanks(String s, int pos, int end) {
+			while (pos < end && s.charAt(pos) <= ' ') {
+				pos++;
+			}
+			return pos;
+		}
+
+		private static int skipDigits(String s, int pos, int end) {
+			while (pos < end && s.charAt(pos) >= '0' && s.charAt(pos) <= '9') {
+				pos++;
+			}
+			return pos;
+		}
+
+		private static long parseLong(String s, int from, int to) {
+			long value = 0;
+			for (int k = from; k < to; k++) {
+				value = value * 10 + (s.charAt(k) - '0');
+			}
+			return value;
+		}
+	}
+
+
 	@Option(name = "-auth", usage = "username:password of secured JMX Connection")
 	private String auth;
 
+	@Option(name = "-all", usage = "heap-histo counts all objects instead of forcing a full GC before each sample")
+	private boolean all;
+
     @Argument(required = true, index = 0, usage = "hostname:port of the jmx server, e.g. localhost:8090")
     private String hostPort;
 
@@ -322,13 +644,16 @@ public class JMXCLI {
 			".v2.c3p0:type=PooledDataSource.* will return the first matching object")
     private String objectName;
 
-    @Argument(required = false, index = 2, usage = "Attribute name of the JMX object, e.g. numBusyConnections")
+    @Argument(required = false, index = 2, usage = "Attribute name of the JMX object, e.g. numBusyConnections" +
+			", or the number of classes to show for heap-histo")
     private String attributeName;
 
-    @Argument(required = false, index = 3, usage = "Time to pause between runs in seconds]")
+    @Argument(required = false, index = 3, usage = "Time to pause between runs in seconds" +
+			", or between samples for heap-histo")
     private long pause = 10;
 
-	@Argument(required = false, index = 4, usage = "How many times to iterate")
+	@Argument(required = false, index = 4, usage = "How many times to iterate" +
+			", or how many diffs to print after the baseline sample for heap-histo, 0 runs until CTRL-C")
 	private long runCount = 1;
 
 	private JMXConnector jmxConnector;
@@ -570,6 +895,8 @@ public class JMXCLI {
                 listObjects(client);
 			} else if (client.getObjectName().equals("threads")) {
 				listThreads(client);
+			} else if (client.getObjectName().equals("heap-histo")) {
+				heapHisto(client);
 			} else if (StringUtils.isBlank(client.getAttributeName())) {
 				listAttributes(client);
 			} else {
@@ -621,6 +948,65 @@ public class JMXCLI {
 		monitor.threadDump();
 	}
 
+	private static void heapHisto(JMXCLI client) {
+
+		int topCount = 20;
+		if (StringUtils.isNotBlank(client.getAttributeName())) {
+			try {
+				topCount = Integer.parseInt(client.getAttributeName());
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Could not parse number of classes from " + client.getAttributeName());
+			}
+		}
+		if (topCount < 1) {
+			throw new IllegalArgumentException("Number of classes must be at least 1, got " + topCount);
+		}
+		if (client.pause < 0) {
+			throw new IllegalArgumentException("Pause must not be negative, got " + client.pause);
+		}
+		if (client.getRunCount() < 0) {
+			throw new IllegalArgumentException("Count must not be negative, got " + client.getRunCount());
+		}
+
+		HeapHistogram histogram;
+		try {
+			histogram = new HeapHistogram(client.jmxConnector.getMBeanServerConnection(), topCount, client.all);
+		} catch (IOException e) {
+			System.err.println("IOException " + e);
+			return;
+		}
+
+		// the first sample is the baseline, runCount is the number of diffs
+		long runCount = 0;
+		while ( client.getRunCount() == 0 || runCount <= client.getRunCount() ) {
+
+			if (runCount++ > 0) {
+				try {
+					Thread.sleep(client.getPause());
+					System.out.println(String.format("##### " + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss")
+							.format(new Date())));
+				} catch (InterruptedException e) {
+				}
+			}
+
+			try {
+				histogram.sample();
+			} catch (InstanceNotFoundException e) {
+				System.err.println("DiagnosticCommand MBean not available, the target JVM must be Java 8 or later " + e);
+				return;
+			} catch (ReflectionException e) {
+				System.err.println("ReflectionException " + e);
+				return;
+			} catch (MBeanException e) {
+				System.err.println("MBeanException " + e);
+				return;
+			} catch (IOException e) {
+				System.err.println("IOException " + e);
+				return;
+			}
+		}
+	}
+
     private static void getObject(JMXCLI client) {
 
 